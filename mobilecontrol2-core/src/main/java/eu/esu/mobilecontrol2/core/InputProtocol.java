@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+package eu.esu.mobilecontrol2.core;
+
+/**
+ * Message codes shared by all ESU Input Services.
+ */
+public final class InputProtocol {
+    /**
+     * The initial protocol version, clients register with {@code replyTo} only.
+     */
+    public static final int PROTOCOL_VERSION_1 = 1;
+
+    /**
+     * The protocol version with capability negotiation.
+     */
+    public static final int PROTOCOL_VERSION_2 = 2;
+
+    /**
+     * The protocol version implemented by this SDK.
+     */
+    public static final int PROTOCOL_VERSION = PROTOCOL_VERSION_2;
+
+    /**
+     * Command to the service to register a client. Callbacks are delivered to
+     * the messenger defined in {@code replyTo}.
+     * <p>
+     * Since {@link #PROTOCOL_VERSION_2} {@code data} contains a bundle with {@link #KEY_PROTOCOL_VERSION},
+     * {@link #KEY_EVENTS} and {@link #KEY_MAX_EVENT_RATE}. Services supporting the bundle reply with
+     * {@link #MSG_CAPABILITIES}, registering again updates the registration. Older services ignore the bundle and do
+     * not reply.
+     * </p>
+     */
+    public static final int MSG_REGISTER_CLIENT = 1;
+
+    /**
+     * Command to the service to remove a registered client from the service.
+     * The {@code replyTo} field must be set to the messenger that shall
+     * be removed.
+     */
+    public static final int MSG_UNREGISTER_CLIENT = 2;
+
+    /**
+     * Callback message in reply to {@link #MSG_REGISTER_CLIENT}, {@code arg1} contains the protocol version of the
+     * service and {@code arg2} the capability flags, e.g. {@link #CAPABILITY_TRAJECTORY}.
+     */
+    public static final int MSG_CAPABILITIES = 100;
+
+    /**
+     * Registration bundle key of the client's protocol version, {@code int}.
+     */
+    public static final String KEY_PROTOCOL_VERSION = "protocolVersion";
+
+    /**
+     * Registration bundle key of the callback message codes the client wants to receive, {@code int[]}. If missing,
+     * all callbacks are sent.
+     */
+    public static final String KEY_EVENTS = "events";
+
+    /**
+     * Registration bundle key of the maximum number of position events per second, {@code int}. 0 means unlimited.
+     */
+    public static final String KEY_MAX_EVENT_RATE = "maxEventRate";
+
+    /**
+     * Capability flag: the service only sends the callbacks listed in {@link #KEY_EVENTS}.
+     */
+    public static final int CAPABILITY_EVENT_FILTER = 1;
+
+    /**
+     * Capability flag: the service limits position events to {@link #KEY_MAX_EVENT_RATE}.
+     */
+    public static final int CAPABILITY_RATE_LIMIT = 1 << 1;
+
+    /**
+     * Capability flag: the service runs trajectories, see {@link ThrottleProtocol#MSG_RUN_TRAJECTORY}.
+     */
+    public static final int CAPABILITY_TRAJECTORY = 1 << 2;
+
+    /**
+     * Capability flag: the service sends its current state after {@link #MSG_CAPABILITIES}, e.g. the throttle
+     * service sends {@link ThrottleProtocol#MSG_POSITION_CHANGED} with the current position. The state is only sent
+     * if the client subscribed to the message.
+     */
+    public static final int CAPABILITY_STATE_SYNC = 1 << 3;
+
+    /**
+     * The Mobile Control II input service package ID.
+     */
+    public static final String SERVICE_PACKAGE = "eu.esu.mobilecontrol2.input";
+
+    private InputProtocol() {
+    }
+}
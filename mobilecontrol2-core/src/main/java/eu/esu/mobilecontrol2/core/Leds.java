@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+package eu.esu.mobilecontrol2.core;
+
+/**
+ * LED identifiers and sysfs paths of the Mobile Control II.
+ */
+public final class Leds {
+
+    /**
+     * The red LED.
+     */
+    public final static int LED_RED = 1;
+
+    /**
+     * The greed LED.
+     */
+    public final static int LED_GREEN = 2;
+
+    /**
+     * The file to select the LED trigger, {@code "none"} or {@code "timer"}.
+     */
+    public final static String FILE_TRIGGER = "trigger";
+
+    /**
+     * The file to set the brightness, {@code "0"} or {@code "1"}.
+     */
+    public final static String FILE_BRIGHTNESS = "brightness";
+
+    /**
+     * The file to set the on time in milliseconds while the LED is flashing.
+     */
+    public final static String FILE_DELAY_ON = "delay_on";
+
+    /**
+     * The file to set the off time in milliseconds while the LED is flashing.
+     */
+    public final static String FILE_DELAY_OFF = "delay_off";
+
+    private final static String ROOT_RED_LED = "/sys/class/leds/mc2:red:led1";
+    private final static String ROOT_GREEN_LED = "/sys/class/leds/mc2:green:led2";
+
+    private Leds() {
+    }
+
+    /**
+     * Returns the path of a LED control file.
+     *
+     * @param which    The LED, {@link #LED_RED} or {@link #LED_GREEN}.
+     * @param fileName The file name, e.g. {@link #FILE_BRIGHTNESS}.
+     * @return The absolute path.
+     */
+    public static String path(int which, String fileName) {
+        String root;
+
+        switch (which) {
+            case LED_RED:
+                root = ROOT_RED_LED;
+                break;
+            case LED_GREEN:
+                root = ROOT_GREEN_LED;
+                break;
+            default:
+                throw new IllegalArgumentException("\"which\" must be LED_RED or LED_GREEN.");
+        }
+
+        return root + "/" + fileName;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+package eu.esu.mobilecontrol2.core;
+
+/**
+ * Message codes of the stop button service.
+ */
+public final class StopButtonProtocol {
+    /**
+     * The action used to bind the stop button service.
+     */
+    public static final String SERVICE_ACTION = "eu.esu.mobilecontrol2.input.STOP_BUTTON_SERVICE";
+
+    /**
+     * Callback message  when the stop button is pressed.
+     */
+    public static final int MSG_STOP_BUTTON_DOWN = 3;
+
+    /**
+     * Callback message when the stop button is released.
+     */
+    public static final int MSG_STOP_BUTTON_UP = 4;
+
+    private StopButtonProtocol() {
+    }
+}
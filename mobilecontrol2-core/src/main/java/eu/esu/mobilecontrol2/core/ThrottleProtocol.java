@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+package eu.esu.mobilecontrol2.core;
+
+/**
+ * Message codes and value ranges of the throttle service.
+ */
+public final class ThrottleProtocol {
+    /**
+     * The action used to bind the throttle service.
+     */
+    public static final String SERVICE_ACTION = "eu.esu.mobilecontrol2.input.THROTTLE_SERVICE";
+
+    /**
+     * The lowest throttle position.
+     */
+    public static final int MIN_POSITION = 0;
+
+    /**
+     * The highest throttle position.
+     */
+    public static final int MAX_POSITION = 255;
+
+    /**
+     * Message to change the throttle position. Set {@code arg1} to the position. Range: 0 - 255.
+     */
+    public static final int MSG_MOVE_TO = 3;
+
+    /**
+     * Message to set the zero position of the throttle. Set {@code arg1} to the position. Range: 0 - 255.
+     */
+    public static final int MSG_SET_ZERO_POSITION = 4;
+
+    /**
+     * Callback message when the position has changed by user input,
+     * {@code arg1} contains the new throttle position. Range: 0 - 126
+     */
+    public static final int MSG_POSITION_CHANGED = 5;
+
+    /**
+     * Callback message when the button is pressed.
+     */
+    public static final int MSG_BUTTON_DOWN = 6;
+
+    /**
+     * Callback message when the button is released.
+     */
+    public static final int MSG_BUTTON_UP = 7;
+
+    /**
+     * Callback when the phisical slider's position has changed by user input,
+     * {@code arg1} contains the new slider position.
+     */
+    public static final int MSG_PHYSICAL_SLIDER_POSITION_CHANGED = 8;
+
+    /**
+     * Message to run a trajectory. Set {@code arg1} to the trajectory ID and {@code data} to a bundle with
+     * {@link #KEY_TRAJECTORY_TIMES} and {@link #KEY_TRAJECTORY_POSITIONS}. A running trajectory is cancelled.
+     */
+    public static final int MSG_RUN_TRAJECTORY = 9;
+
+    /**
+     * Message to cancel a running trajectory. Set {@code arg1} to the trajectory ID.
+     */
+    public static final int MSG_CANCEL_TRAJECTORY = 10;
+
+    /**
+     * Callback message when a trajectory waypoint has been reached, {@code arg1} contains the trajectory ID and
+     * {@code arg2} the waypoint index.
+     */
+    public static final int MSG_TRAJECTORY_PROGRESS = 11;
+
+    /**
+     * Callback message when a trajectory has finished, {@code arg1} contains the trajectory ID and {@code arg2} is
+     * {@code 1} if the trajectory has been cancelled, else {@code 0}.
+     */
+    public static final int MSG_TRAJECTORY_FINISHED = 12;
+
+    /**
+     * Bundle key of the waypoint times of a trajectory, {@code int[]} in milliseconds.
+     */
+    public static final String KEY_TRAJECTORY_TIMES = "times";
+
+    /**
+     * Bundle key of the waypoint positions of a trajectory, {@code int[]}.
+     */
+    public static final String KEY_TRAJECTORY_POSITIONS = "positions";
+
+    private ThrottleProtocol() {
+    }
+
+    /**
+     * Checks if a throttle position is in range.
+     *
+     * @param position The position.
+     * @return The position.
+     * @throws java.lang.IllegalArgumentException "position" is out of range.
+     */
+    public static int checkPosition(int position) {
+        if (position < MIN_POSITION || position > MAX_POSITION) {
+            throw new IllegalArgumentException("position must be >= 0 and <= 255");
+        }
+
+        return position;
+    }
+}
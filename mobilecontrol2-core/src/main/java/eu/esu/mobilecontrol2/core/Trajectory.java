@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+package eu.esu.mobilecontrol2.core;
+
+import java.util.Arrays;
+
+/**
+ * A throttle motion profile defined by timed waypoints.
+ * <p>
+ * Each waypoint consists of a time in milliseconds relative to the start of the trajectory and the throttle position
+ * that is reached at that time. Instances are immutable.
+ * </p>
+ */
+public class Trajectory {
+
+    private final int[] mTimes;
+    private final int[] mPositions;
+
+    /**
+     * Creates a new {@link eu.esu.mobilecontrol2.core.Trajectory} instance.
+     *
+     * @param times     The waypoint times in milliseconds, must be &gt;= 0 and ascending.
+     * @param positions The waypoint positions, range 0 - 255.
+     * @throws java.lang.IllegalArgumentException The waypoints are invalid.
+     */
+    public Trajectory(int[] times, int[] positions) {
+        if (times.length == 0 || times.length != positions.length) {
+            throw new IllegalArgumentException("times and positions must have the same length > 0");
+        }
+
+        for (int i = 0; i < times.length; ++i) {
+            if (times[i] < 0 || (i > 0 && times[i] < times[i - 1])) {
+                throw new IllegalArgumentException("times must be >= 0 and ascending");
+            }
+            ThrottleProtocol.checkPosition(positions[i]);
+        }
+
+        mTimes = Arrays.copyOf(times, times.length);
+        mPositions = Arrays.copyOf(positions, positions.length);
+    }
+
+    /**
+     * Returns the number of waypoints.
+     *
+     * @return The number of waypoints.
+     */
+    public int getWaypointCount() {
+        return mTimes.length;
+    }
+
+    /**
+     * Returns the time of a waypoint.
+     *
+     * @param index The waypoint index.
+     * @return The time in milliseconds relative to the start.
+     */
+    public int getTime(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * Returns the position of a waypoint.
+     *
+     * @param index The waypoint index.
+     * @return The throttle position.
+     */
+    public int getPosition(int index) {
+        return mPositions[index];
+    }
+
+    /**
+     * Returns the duration of the trajectory.
+     *
+     * @return The time of the last waypoint in milliseconds.
+     */
+    public int getDuration() {
+        return mTimes[mTimes.length - 1];
+    }
+
+    /**
+     * Returns a copy of the waypoint times.
+     *
+     * @return The times in milliseconds.
+     */
+    public int[] getTimes() {
+        return Arrays.copyOf(mTimes, mTimes.length);
+    }
+
+    /**
+     * Returns a copy of the waypoint positions.
+     *
+     * @return The positions.
+     */
+    public int[] getPositions() {
+        return Arrays.copyOf(mPositions, mPositions.length);
+    }
+}
@@ -0,0 +1,14 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+/**
+ * Contains the device independent protocol definitions and throttle logic of the Mobile Control II SDK.
+ * <p>
+ * This package has no Android dependencies and can be used on a plain JVM.
+ * </p>
+ */
+package eu.esu.mobilecontrol2.core;
@@ -9,8 +9,13 @@ package eu.esu.mobilecontrol2.sdk;
 
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.os.Bundle;
 import android.os.Message;
 
+import eu.esu.mobilecontrol2.core.InputProtocol;
+import eu.esu.mobilecontrol2.core.ThrottleProtocol;
+import eu.esu.mobilecontrol2.core.Trajectory;
+
 /**
  * Utility class for the ESU Input Services.
  */
@@ -19,19 +24,19 @@ class InputServices {
      * Command to the service to register a client. Callbacks are delivered to
      * the messenger defined in {@link Message#replyTo}.
      */
-    public static final int MSG_REGISTER_CLIENT = 1;
+    public static final int MSG_REGISTER_CLIENT = InputProtocol.MSG_REGISTER_CLIENT;
 
     /**
      * Command to the service to remove a registered client from the service.
      * The {@link Message#replyTo} field must be set to the messenger that shall
      * be removed.
      */
-    public static final int MSG_UNREGISTER_CLIENT = 2;
+    public static final int MSG_UNREGISTER_CLIENT = InputProtocol.MSG_UNREGISTER_CLIENT;
 
     /**
      * The Mobile Control II input service package ID.
      */
-    public static final String SERVICE_PACKAGE = "eu.esu.mobilecontrol2.input";
+    public static final String SERVICE_PACKAGE = InputProtocol.SERVICE_PACKAGE;
 
     /**
      * Returns if the service is installed on the current device.
@@ -47,4 +52,34 @@ class InputServices {
             return false;
         }
     }
+
+    /**
+     * Writes a trajectory to a bundle.
+     *
+     * @param trajectory The trajectory.
+     * @return The bundle for {@link ThrottleProtocol#MSG_RUN_TRAJECTORY}.
+     */
+    public static Bundle toBundle(Trajectory trajectory) {
+        final Bundle bundle = new Bundle();
+        bundle.putIntArray(ThrottleProtocol.KEY_TRAJECTORY_TIMES, trajectory.getTimes());
+        bundle.putIntArray(ThrottleProtocol.KEY_TRAJECTORY_POSITIONS, trajectory.getPositions());
+        return bundle;
+    }
+
+    /**
+     * Reads a trajectory from a bundle.
+     *
+     * @param bundle The bundle of a {@link ThrottleProtocol#MSG_RUN_TRAJECTORY} message.
+     * @return The trajectory.
+     * @throws java.lang.IllegalArgumentException The bundle does not contain a valid trajectory.
+     */
+    public static Trajectory trajectoryFromBundle(Bundle bundle) {
+        final int[] times = bundle != null ? bundle.getIntArray(ThrottleProtocol.KEY_TRAJECTORY_TIMES) : null;
+        final int[] positions = bundle != null ? bundle.getIntArray(ThrottleProtocol.KEY_TRAJECTORY_POSITIONS) : null;
+        if (times == null || positions == null) {
+            throw new IllegalArgumentException("bundle does not contain a trajectory");
+        }
+
+        return new Trajectory(times, positions);
+    }
 }
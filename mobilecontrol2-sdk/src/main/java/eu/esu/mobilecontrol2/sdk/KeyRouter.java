@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+package eu.esu.mobilecontrol2.sdk;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.view.KeyEvent;
+import android.view.ViewConfiguration;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Routes the hardware keys of the Mobile Control II to a listener.
+ * <p>
+ * The router handles {@link MobileControl2#KEYCODE_TOP_LEFT}, {@link MobileControl2#KEYCODE_TOP_RIGHT},
+ * {@link MobileControl2#KEYCODE_BOTTOM_LEFT} and {@link MobileControl2#KEYCODE_BOTTOM_RIGHT} and detects long presses,
+ * accelerated key repeats and chords. {@link ThrottleFragment#KEYCODE_THROTTLE_WAKEUP} is always consumed. If not
+ * running on a Mobile Control II the side keys are not routed, so the default key handling is not affected.
+ * </p>
+ * <p>
+ * Callbacks are delivered on the thread of the given looper, or the main thread by default. The router does not
+ * allocate memory per key event.
+ * </p>
+ * <h3>Usage:</h3>
+ * <pre> {@code
+ * protected void onCreate(Bundle savedInstanceState) {
+ *     ...
+ *     mKeyRouter = new KeyRouter(mOnHardwareKeyListener);
+ * }
+ *
+ * public boolean onKeyDown(int keyCode, KeyEvent event) {
+ *     return mKeyRouter.onKeyDown(keyCode, event) || super.onKeyDown(keyCode, event);
+ * }
+ *
+ * public boolean onKeyUp(int keyCode, KeyEvent event) {
+ *     return mKeyRouter.onKeyUp(keyCode, event) || super.onKeyUp(keyCode, event);
+ * }
+ * }
+ * </pre>
+ */
+public class KeyRouter {
+
+    private static final int[] KEY_CODES = {
+            MobileControl2.KEYCODE_TOP_LEFT,
+            MobileControl2.KEYCODE_TOP_RIGHT,
+            MobileControl2.KEYCODE_BOTTOM_LEFT,
+            MobileControl2.KEYCODE_BOTTOM_RIGHT
+    };
+
+    /**
+     * Repeat counts at which the next acceleration factor is used.
+     */
+    private static final int[] ACCELERATION_THRESHOLDS = {0, 10, 20, 40};
+
+    private static final int[] ACCELERATION_FACTORS = {1, 2, 5, 10};
+
+    private static final int EVENT_DOWN = 1;
+    private static final int EVENT_UP = 2;
+    private static final int EVENT_REPEAT = 3;
+    private static final int EVENT_CHORD = 4;
+
+    /**
+     * Long press events use one message code per key so that they can be removed individually.
+     */
+    private static final int EVENT_LONG_PRESS = 16;
+
+    private final OnHardwareKeyListener mListener;
+    private final Handler mHandler;
+    private final boolean mEnabled;
+    private final long mLongPressTimeout;
+    private final int[] mDownSequence = new int[KEY_CODES.length];
+    private int mPressedMask;
+    private int mSequence;
+
+    /**
+     * Creates a new {@link KeyRouter} that delivers callbacks on the main thread.
+     *
+     * @param listener The listener.
+     */
+    public KeyRouter(OnHardwareKeyListener listener) {
+        this(listener, Looper.getMainLooper());
+    }
+
+    /**
+     * Creates a new {@link KeyRouter} that delivers callbacks on the thread of {@code looper}.
+     *
+     * @param listener The listener.
+     * @param looper   The looper of the thread that receives the callbacks.
+     */
+    public KeyRouter(OnHardwareKeyListener listener, Looper looper) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+
+        mListener = listener;
+        mHandler = new DispatchHandler(looper, new WeakReference<>(this));
+        mEnabled = MobileControl2.isMobileControl2();
+        mLongPressTimeout = ViewConfiguration.getLongPressTimeout();
+    }
+
+    /**
+     * Handles a key down event. Call this method from {@code Activity.onKeyDown()}.
+     *
+     * @param keyCode The key code.
+     * @param event   The key event.
+     * @return {@code true} if the event has been consumed, else {@code false}.
+     */
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        if (keyCode == ThrottleFragment.KEYCODE_THROTTLE_WAKEUP) {
+            return true;
+        }
+
+        final int slot = slotOf(keyCode);
+        if (slot < 0) {
+            return false;
+        }
+
+        final int repeatCount = event.getRepeatCount();
+        if (repeatCount > 0) {
+            dispatch(EVENT_REPEAT, keyCode, repeatCount);
+            return true;
+        }
+
+        // A missed key up leaves the key's own bit set, this is not a chord.
+        final int chordSlot = (mPressedMask & (1 << slot)) == 0 ? firstPressedSlot() : -1;
+        mPressedMask |= 1 << slot;
+        mDownSequence[slot] = ++mSequence;
+        mHandler.removeMessages(EVENT_LONG_PRESS + slot);
+        mHandler.sendMessageDelayed(
+                Message.obtain(mHandler, EVENT_LONG_PRESS + slot, keyCode, 0),
+                mLongPressTimeout);
+
+        dispatch(EVENT_DOWN, keyCode, 0);
+        if (chordSlot >= 0) {
+            dispatch(EVENT_CHORD, KEY_CODES[chordSlot], keyCode);
+        }
+        return true;
+    }
+
+    /**
+     * Handles a key up event. Call this method from {@code Activity.onKeyUp()}.
+     *
+     * @param keyCode The key code.
+     * @param event   The key event.
+     * @return {@code true} if the event has been consumed, else {@code false}.
+     */
+    public boolean onKeyUp(int keyCode, KeyEvent event) {
+        if (keyCode == ThrottleFragment.KEYCODE_THROTTLE_WAKEUP) {
+            return true;
+        }
+
+        final int slot = slotOf(keyCode);
+        if (slot < 0) {
+            return false;
+        }
+
+        mPressedMask &= ~(1 << slot);
+        mHandler.removeMessages(EVENT_LONG_PRESS + slot);
+        dispatch(EVENT_UP, keyCode, 0);
+        return true;
+    }
+
+    /**
+     * Resets the pressed keys and cancels pending long press callbacks, e.g. if the activity is paused while a key is
+     * pressed.
+     */
+    public void reset() {
+        mPressedMask = 0;
+        for (int slot = 0; slot < KEY_CODES.length; ++slot) {
+            mHandler.removeMessages(EVENT_LONG_PRESS + slot);
+        }
+    }
+
+    private int slotOf(int keyCode) {
+        if (!mEnabled) {
+            return -1;
+        }
+
+        for (int slot = 0; slot < KEY_CODES.length; ++slot) {
+            if (KEY_CODES[slot] == keyCode) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private int firstPressedSlot() {
+        int first = -1;
+        for (int slot = 0; slot < KEY_CODES.length; ++slot) {
+            if ((mPressedMask & (1 << slot)) != 0
+                    && (first < 0 || mDownSequence[slot] - mDownSequence[first] < 0)) {
+                first = slot;
+            }
+        }
+
+        return first;
+    }
+
+    private static int accelerationOf(int repeatCount) {
+        int index = ACCELERATION_THRESHOLDS.length - 1;
+        while (repeatCount < ACCELERATION_THRESHOLDS[index]) {
+            --index;
+        }
+
+        return ACCELERATION_FACTORS[index];
+    }
+
+    private void dispatch(int event, int arg1, int arg2) {
+        // Deliver directly if already on the target thread to avoid the extra message queue round trip.
+        if (Looper.myLooper() == mHandler.getLooper()) {
+            onEvent(event, arg1, arg2);
+        } else {
+            Message.obtain(mHandler, event, arg1, arg2).sendToTarget();
+        }
+    }
+
+    private void onEvent(int event, int arg1, int arg2) {
+        switch (event) {
+            case EVENT_DOWN:
+                mListener.onKeyDown(arg1);
+                break;
+            case EVENT_UP:
+                mListener.onKeyUp(arg1);
+                break;
+            case EVENT_REPEAT:
+                mListener.onKeyRepeat(arg1, arg2, accelerationOf(arg2));
+                break;
+            case EVENT_CHORD:
+                mListener.onChord(arg1, arg2);
+                break;
+            default:
+                if (event >= EVENT_LONG_PRESS) {
+                    mListener.onKeyLongPress(arg1);
+                }
+                break;
+        }
+    }
+
+    private static class DispatchHandler extends Handler {
+        private final WeakReference<KeyRouter> mParent;
+
+        public DispatchHandler(Looper looper, WeakReference<KeyRouter> parent) {
+            super(looper);
+            mParent = parent;
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            KeyRouter parent = mParent.get();
+            if (parent != null) {
+                parent.onEvent(msg.what, msg.arg1, msg.arg2);
+            }
+        }
+    }
+
+    /**
+     * Listener interface for hardware key callbacks.
+     * <p>
+     * All methods receive the key code, e.g. {@link MobileControl2#KEYCODE_TOP_LEFT}.
+     * </p>
+     */
+    public interface OnHardwareKeyListener {
+
+        /**
+         * Invoked after a key has been pressed.
+         *
+         * @param keyCode The key code.
+         */
+        void onKeyDown(int keyCode);
+
+        /**
+         * Invoked after a key has been released.
+         *
+         * @param keyCode The key code.
+         */
+        void onKeyUp(int keyCode);
+
+        /**
+         * Invoked once if a key is pressed longer than the long press timeout.
+         *
+         * @param keyCode The key code.
+         */
+        void onKeyLongPress(int keyCode);
+
+        /**
+         * Invoked for every repeat of a pressed key.
+         * <p>
+         * The {@code acceleration} factor increases the longer the key is held (1, 2, 5, 10). Multiply your increment
+         * with it to speed up key driven value changes.
+         * </p>
+         *
+         * @param keyCode      The key code.
+         * @param repeatCount  The number of repeats.
+         * @param acceleration The acceleration factor.
+         */
+        void onKeyRepeat(int keyCode, int repeatCount, int acceleration);
+
+        /**
+         * Invoked if a key is pressed while another key is still pressed.
+         *
+         * @param firstKeyCode  The key code of the key that was pressed first.
+         * @param secondKeyCode The key code of the key that has just been pressed.
+         */
+        void onChord(int firstKeyCode, int secondKeyCode);
+    }
+
+    /**
+     * Empty implementation of {@link OnHardwareKeyListener}. Override only the callbacks you need.
+     */
+    public static class SimpleOnHardwareKeyListener implements OnHardwareKeyListener {
+        @Override
+        public void onKeyDown(int keyCode) {
+        }
+
+        @Override
+        public void onKeyUp(int keyCode) {
+        }
+
+        @Override
+        public void onKeyLongPress(int keyCode) {
+        }
+
+        @Override
+        public void onKeyRepeat(int keyCode, int repeatCount, int acceleration) {
+        }
+
+        @Override
+        public void onChord(int firstKeyCode, int secondKeyCode) {
+        }
+    }
+}
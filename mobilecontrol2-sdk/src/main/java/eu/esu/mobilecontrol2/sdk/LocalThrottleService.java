@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+package eu.esu.mobilecontrol2.sdk;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+import eu.esu.mobilecontrol2.core.InputProtocol;
+import eu.esu.mobilecontrol2.core.Trajectory;
+
+import static eu.esu.mobilecontrol2.core.InputProtocol.MSG_CAPABILITIES;
+import static eu.esu.mobilecontrol2.core.InputProtocol.MSG_REGISTER_CLIENT;
+import static eu.esu.mobilecontrol2.core.InputProtocol.MSG_UNREGISTER_CLIENT;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_BUTTON_DOWN;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_BUTTON_UP;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_CANCEL_TRAJECTORY;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_MOVE_TO;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_PHYSICAL_SLIDER_POSITION_CHANGED;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_POSITION_CHANGED;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_RUN_TRAJECTORY;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_SET_ZERO_POSITION;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_TRAJECTORY_FINISHED;
+import static eu.esu.mobilecontrol2.core.ThrottleProtocol.MSG_TRAJECTORY_PROGRESS;
+
+/**
+ * In-process stand-in for the throttle service of the ESU Input Services.
+ * <p>
+ * The service implements the throttle protocol without hardware, so that apps can be tested on other devices and in
+ * emulators. User input is simulated by sending {@code MSG_POSITION_CHANGED}, {@code MSG_BUTTON_DOWN},
+ * {@code MSG_BUTTON_UP} or {@code MSG_PHYSICAL_SLIDER_POSITION_CHANGED} to the service, these messages are forwarded to
+ * all registered clients.
+ * </p>
+ * <p>
+ * The service implements {@link InputProtocol#PROTOCOL_VERSION_2} with {@link InputProtocol#CAPABILITY_EVENT_FILTER},
+ * {@link InputProtocol#CAPABILITY_TRAJECTORY} and {@link InputProtocol#CAPABILITY_STATE_SYNC}.
+ * </p>
+ * <h3>Usage:</h3>
+ * Declare the service in the manifest of your debug or test build and enable it before the
+ * {@link ThrottleFragment} is created:
+ * <pre> {@code
+ * <service android:name="eu.esu.mobilecontrol2.sdk.LocalThrottleService" android:exported="false" />
+ *
+ * LocalThrottleService.setEnabled(true);
+ * }
+ * </pre>
+ */
+public class LocalThrottleService extends Service {
+    private static final String TAG = "LocalThrottleService";
+
+    private static final int CAPABILITIES =
+            InputProtocol.CAPABILITY_EVENT_FILTER
+                    | InputProtocol.CAPABILITY_TRAJECTORY
+                    | InputProtocol.CAPABILITY_STATE_SYNC;
+
+    private static volatile boolean sEnabled;
+
+    private final ArrayList<Messenger> mClients = new ArrayList<>();
+    private final ArrayList<int[]> mClientEvents = new ArrayList<>();
+    private final Handler mHandler = new IncomingMessageHandler(new WeakReference<>(this));
+    private final Messenger mMessenger = new Messenger(mHandler);
+    private final TrajectoryPlayer mPlayer = new TrajectoryPlayer(mHandler, new TrajectoryPlayer.Callback() {
+        @Override
+        public void onWaypoint(int index, int position) {
+            mPosition = Math.max(position, mZeroPosition);
+            sendToClients(MSG_TRAJECTORY_PROGRESS, mTrajectoryId, index);
+        }
+
+        @Override
+        public void onFinished(boolean cancelled) {
+            sendToClients(MSG_TRAJECTORY_FINISHED, mTrajectoryId, cancelled ? 1 : 0);
+        }
+    });
+
+    private int mPosition;
+    private int mZeroPosition;
+    private int mTrajectoryId;
+
+    /**
+     * Enables or disables the local service.
+     * <p>
+     * If enabled, {@link ThrottleFragment} instances created afterwards bind this service instead of the ESU Input
+     * Services.
+     * </p>
+     *
+     * @param enabled {@code true} to use the local service, else {@code false}.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Returns if the local service is enabled.
+     *
+     * @return {@code true} if the local service is enabled, else {@code false}.
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return mMessenger.getBinder();
+    }
+
+    @Override
+    public void onDestroy() {
+        mHandler.removeCallbacks(mPlayer);
+        super.onDestroy();
+    }
+
+    private void onMessage(Message msg) {
+        switch (msg.what) {
+            case MSG_REGISTER_CLIENT:
+                registerClient(msg);
+                break;
+            case MSG_UNREGISTER_CLIENT:
+                unregisterClient(msg);
+                break;
+            case MSG_MOVE_TO:
+                mPlayer.cancel();
+                mPosition = Math.max(msg.arg1, mZeroPosition);
+                break;
+            case MSG_SET_ZERO_POSITION:
+                mZeroPosition = msg.arg1;
+                mPosition = Math.max(mPosition, mZeroPosition);
+                break;
+            case MSG_RUN_TRAJECTORY:
+                runTrajectory(msg);
+                break;
+            case MSG_CANCEL_TRAJECTORY:
+                if (msg.arg1 == mTrajectoryId) {
+                    mPlayer.cancel();
+                }
+                break;
+            case MSG_POSITION_CHANGED:
+                mPosition = msg.arg1;
+                sendToClients(msg.what, msg.arg1, msg.arg2);
+                break;
+            case MSG_BUTTON_DOWN:
+            case MSG_BUTTON_UP:
+            case MSG_PHYSICAL_SLIDER_POSITION_CHANGED:
+                sendToClients(msg.what, msg.arg1, msg.arg2);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void registerClient(Message msg) {
+        if (msg.replyTo == null) {
+            return;
+        }
+
+        final Bundle registration = msg.peekData();
+        final int[] events = registration != null ? registration.getIntArray(InputProtocol.KEY_EVENTS) : null;
+        final int index = mClients.indexOf(msg.replyTo);
+        if (index >= 0) {
+            mClientEvents.set(index, events);
+        } else {
+            mClients.add(msg.replyTo);
+            mClientEvents.add(events);
+        }
+
+        // Clients of the initial protocol version do not expect a reply.
+        if (registration != null && registration.getInt(InputProtocol.KEY_PROTOCOL_VERSION)
+                >= InputProtocol.PROTOCOL_VERSION_2) {
+            try {
+                msg.replyTo.send(Message.obtain(null, MSG_CAPABILITIES, InputProtocol.PROTOCOL_VERSION, CAPABILITIES));
+                if (isSubscribed(events, MSG_POSITION_CHANGED)) {
+                    msg.replyTo.send(Message.obtain(null, MSG_POSITION_CHANGED, mPosition, 0));
+                }
+            } catch (final RemoteException ex) {
+                Log.e(TAG, "Failed to send capabilities", ex);
+            }
+        }
+    }
+
+    private void unregisterClient(Message msg) {
+        final int index = mClients.indexOf(msg.replyTo);
+        if (index >= 0) {
+            mClients.remove(index);
+            mClientEvents.remove(index);
+        }
+    }
+
+    private void runTrajectory(Message msg) {
+        final Trajectory trajectory;
+        try {
+            trajectory = InputServices.trajectoryFromBundle(msg.getData());
+        } catch (final IllegalArgumentException ex) {
+            Log.e(TAG, "Invalid trajectory", ex);
+            sendToClients(MSG_TRAJECTORY_FINISHED, msg.arg1, 1);
+            return;
+        }
+
+        mPlayer.cancel();
+        mTrajectoryId = msg.arg1;
+        mPlayer.start(trajectory);
+    }
+
+    private void sendToClients(int what, int arg1, int arg2) {
+        for (int i = mClients.size() - 1; i >= 0; --i) {
+            if (!isSubscribed(mClientEvents.get(i), what)) {
+                continue;
+            }
+
+            try {
+                mClients.get(i).send(Message.obtain(null, what, arg1, arg2));
+            } catch (final RemoteException ex) {
+                // The client is dead, remove it.
+                mClients.remove(i);
+                mClientEvents.remove(i);
+            }
+        }
+    }
+
+    private static boolean isSubscribed(int[] events, int what) {
+        if (events == null) {
+            return true;
+        }
+
+        for (int event : events) {
+            if (event == what) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static class IncomingMessageHandler extends Handler {
+        private final WeakReference<LocalThrottleService> mParent;
+
+        public IncomingMessageHandler(WeakReference<LocalThrottleService> parent) {
+            mParent = parent;
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            LocalThrottleService parent = mParent.get();
+            if (parent != null) {
+                parent.onMessage(msg);
+            }
+        }
+    }
+}
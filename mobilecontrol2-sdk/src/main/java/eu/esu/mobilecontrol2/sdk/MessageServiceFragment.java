@@ -21,6 +21,8 @@ import android.util.Log;
 
 import java.lang.ref.WeakReference;
 
+import eu.esu.mobilecontrol2.core.InputProtocol;
+
 import static eu.esu.mobilecontrol2.sdk.InputServices.MSG_REGISTER_CLIENT;
 import static eu.esu.mobilecontrol2.sdk.InputServices.MSG_UNREGISTER_CLIENT;
 
@@ -33,22 +35,31 @@ abstract class MessageServiceFragment extends Fragment {
     private Messenger mSender;
     private Messenger mReceiver;
     private boolean mServiceBound;
+    private boolean mSubscribed;
+    private boolean mReceiveWhilePaused;
+    private int mMaxEventRate;
+    private int mServiceProtocolVersion = InputProtocol.PROTOCOL_VERSION_1;
+    private int mServiceCapabilities;
 
     private final ServiceConnection mConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
             mSender = new Messenger(service);
-            final Message register = Message.obtain(null, MSG_REGISTER_CLIENT);
-            register.replyTo = mReceiver;
-            sendMessage(register);
-
+            mServiceProtocolVersion = InputProtocol.PROTOCOL_VERSION_1;
+            mServiceCapabilities = 0;
             mServiceBound = true;
             MessageServiceFragment.this.onServiceConnected();
+
+            // Register after the commands of onServiceConnected(), so that the state sent by the service is current.
+            if (isResumed() || mReceiveWhilePaused) {
+                subscribe();
+            }
         }
 
         @Override
         public void onServiceDisconnected(ComponentName name) {
             mServiceBound = false;
+            mSubscribed = false;
         }
     };
 
@@ -57,8 +68,7 @@ abstract class MessageServiceFragment extends Fragment {
         super.onCreate(savedInstanceState);
         mReceiver = new Messenger(new IncomingMessageHandler(new WeakReference<>(this)));
 
-        // Ignore input services on 3rd party devices to prevent crashes.
-        if (MobileControl2.isMobileControl2() && InputServices.isInstalled(getActivity())) {
+        if (shouldBindService()) {
             getActivity().bindService(
                     getServiceIntent(),
                     mConnection,
@@ -66,14 +76,32 @@ abstract class MessageServiceFragment extends Fragment {
         }
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        if (mServiceBound && !mSubscribed) {
+            onResubscribe();
+            subscribe();
+        }
+    }
+
+    @Override
+    public void onPause() {
+        if (mSubscribed && !mReceiveWhilePaused) {
+            unsubscribe();
+        }
+        super.onPause();
+    }
+
     @Override
     public void onDestroy() {
         if (mServiceBound) {
-            final Message message = Message.obtain(null, MSG_UNREGISTER_CLIENT);
-            message.replyTo = mReceiver;
-            sendMessage(message);
+            if (mSubscribed) {
+                unsubscribe();
+            }
 
             getActivity().unbindService(mConnection);
+            mServiceBound = false;
         }
         super.onDestroy();
     }
@@ -82,6 +110,115 @@ abstract class MessageServiceFragment extends Fragment {
         return mServiceBound;
     }
 
+    /**
+     * Sets if messages are received while the fragment is paused.
+     * <p>
+     * By default the fragment unregisters from the service while it is paused, so that no messages are sent to the
+     * app in the background. Enable this option if you need to receive every event, even if the fragment is paused.
+     * </p>
+     *
+     * @param receiveWhilePaused {@code true} to receive messages while paused, else {@code false}.
+     */
+    public void setReceiveWhilePaused(boolean receiveWhilePaused) {
+        mReceiveWhilePaused = receiveWhilePaused;
+
+        if (mServiceBound && !isResumed()) {
+            if (receiveWhilePaused && !mSubscribed) {
+                subscribe();
+            } else if (!receiveWhilePaused && mSubscribed) {
+                unsubscribe();
+            }
+        }
+    }
+
+    /**
+     * Returns if messages are received while the fragment is paused.
+     *
+     * @return {@code true} if messages are received while paused, else {@code false}.
+     */
+    public boolean isReceiveWhilePaused() {
+        return mReceiveWhilePaused;
+    }
+
+    /**
+     * Returns if the service shall be bound.
+     *
+     * @return {@code true} if running on a Mobile Control II with the ESU Input Services installed.
+     */
+    protected boolean shouldBindService() {
+        // Ignore input services on 3rd party devices to prevent crashes.
+        return MobileControl2.isMobileControl2() && InputServices.isInstalled(getActivity());
+    }
+
+    /**
+     * Sets the preferred maximum number of position events per second.
+     * <p>
+     * The rate is sent to the service when registering. It is only applied if the service supports
+     * {@link InputProtocol#CAPABILITY_RATE_LIMIT}.
+     * </p>
+     *
+     * @param eventsPerSecond The maximum rate, 0 for unlimited.
+     */
+    public void setMaxEventRate(int eventsPerSecond) {
+        if (eventsPerSecond < 0) {
+            throw new IllegalArgumentException("eventsPerSecond must be >= 0");
+        }
+
+        mMaxEventRate = eventsPerSecond;
+        updateSubscription();
+    }
+
+    /**
+     * Returns the preferred maximum number of position events per second.
+     *
+     * @return The maximum rate, 0 for unlimited.
+     */
+    public int getMaxEventRate() {
+        return mMaxEventRate;
+    }
+
+    /**
+     * Returns the protocol version of the connected service.
+     *
+     * @return The protocol version, {@link InputProtocol#PROTOCOL_VERSION_1} if the service did not reply with its
+     * capabilities.
+     */
+    protected int getServiceProtocolVersion() {
+        return mServiceProtocolVersion;
+    }
+
+    /**
+     * Returns if the connected service supports a capability.
+     *
+     * @param capability The capability flag, e.g. {@link InputProtocol#CAPABILITY_TRAJECTORY}.
+     * @return {@code true} if the capability is supported, else {@code false}.
+     */
+    protected boolean hasCapability(int capability) {
+        return (mServiceCapabilities & capability) == capability;
+    }
+
+    /**
+     * Returns the callback message codes the fragment wants to receive.
+     *
+     * @return The message codes or {@code null} to receive all callbacks.
+     */
+    protected int[] getSubscribedEvents() {
+        return null;
+    }
+
+    /**
+     * Sends the current subscription to the service again, e.g. after {@link #getSubscribedEvents()} has changed.
+     * <p>
+     * Does nothing if the service does not support capability negotiation, since older services would register the
+     * client twice.
+     * </p>
+     */
+    protected void updateSubscription() {
+        if (mServiceBound && mSubscribed && mServiceProtocolVersion >= InputProtocol.PROTOCOL_VERSION_2) {
+            subscribe();
+        }
+    }
+
     /**
      * Returns the service intent.
      *
@@ -95,19 +232,39 @@ abstract class MessageServiceFragment extends Fragment {
      * @param message The message.
      */
     protected void sendMessage(Message message) {
+        Tracing.beginSection(Tracing.SECTION_SEND_MESSAGE);
         try {
             mSender.send(message);
         } catch (final RemoteException ex) {
             Log.e("EsuInputServices", "Failed to send message", ex);
+        } finally {
+            Tracing.endSection();
         }
     }
 
     /**
-     * Invoked after the service is connected.
+     * Invoked after the service is connected, before the fragment registers for messages.
      */
     protected void onServiceConnected() {
     }
 
+    /**
+     * Invoked after the service has replied with its capabilities.
+     */
+    protected void onCapabilitiesReceived() {
+    }
+
+    /**
+     * Invoked on resume right before the fragment registers again for messages.
+     * <p>
+     * Messages sent by the service while the fragment was paused are not delivered. Services supporting
+     * {@link InputProtocol#CAPABILITY_STATE_SYNC} reply to the registration with their current state instead. Commands
+     * sent from this method are processed by the service before the registration.
+     * </p>
+     */
+    protected void onResubscribe() {
+    }
+
     /**
      * Invoked after a message has been received from the service.
      *
@@ -116,6 +273,35 @@ abstract class MessageServiceFragment extends Fragment {
     protected void onMessageReceived(Message message) {
     }
 
+    private void subscribe() {
+        final Bundle registration = new Bundle();
+        registration.putInt(InputProtocol.KEY_PROTOCOL_VERSION, InputProtocol.PROTOCOL_VERSION);
+        registration.putInt(InputProtocol.KEY_MAX_EVENT_RATE, mMaxEventRate);
+        final int[] events = getSubscribedEvents();
+        if (events != null) {
+            registration.putIntArray(InputProtocol.KEY_EVENTS, events);
+        }
+
+        final Message register = Message.obtain(null, MSG_REGISTER_CLIENT);
+        register.replyTo = mReceiver;
+        register.setData(registration);
+        sendMessage(register);
+        mSubscribed = true;
+    }
+
+    private void onCapabilities(int protocolVersion, int capabilities) {
+        mServiceProtocolVersion = protocolVersion;
+        mServiceCapabilities = capabilities;
+        onCapabilitiesReceived();
+    }
+
+    private void unsubscribe() {
+        final Message unregister = Message.obtain(null, MSG_UNREGISTER_CLIENT);
+        unregister.replyTo = mReceiver;
+        sendMessage(unregister);
+        mSubscribed = false;
+    }
+
     private static class IncomingMessageHandler extends Handler {
         private final WeakReference<MessageServiceFragment> mParent;
 
@@ -130,8 +316,18 @@ abstract class MessageServiceFragment extends Fragment {
                 throw new AssertionError("parent is null");
             }
 
-            if (parent.isResumed()) {
-                parent.onMessageReceived(msg);
+            if (msg.what == InputProtocol.MSG_CAPABILITIES) {
+                parent.onCapabilities(msg.arg1, msg.arg2);
+                return;
+            }
+
+            if (parent.isResumed() || parent.mReceiveWhilePaused) {
+                Tracing.beginSection(Tracing.SECTION_HANDLE_MESSAGE);
+                try {
+                    parent.onMessageReceived(msg);
+                } finally {
+                    Tracing.endSection();
+                }
             }
         }
     }
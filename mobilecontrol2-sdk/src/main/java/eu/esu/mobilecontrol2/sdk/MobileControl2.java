@@ -15,6 +15,8 @@ import android.view.KeyEvent;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
+import eu.esu.mobilecontrol2.core.Leds;
+
 /**
  * Provides key constant mapping and methods to access to the LEDs.
  */
@@ -44,16 +46,14 @@ public final class MobileControl2 {
     /**
      * The red LED.
      */
-    public final static int LED_RED = 1;
+    public final static int LED_RED = Leds.LED_RED;
 
     /**
      * The greed LED.
      */
-    public final static int LED_GREEN = 2;
+    public final static int LED_GREEN = Leds.LED_GREEN;
 
     private final static String TAG = "Mobile Control II Input";
-    private final static String ROOT_RED_LED = "/sys/class/leds/mc2:red:led1";
-    private final static String ROOT_GREEN_LED = "/sys/class/leds/mc2:green:led2";
 
     private final static boolean RUNS_ON_MOBILECONTROL2 =
             Build.MODEL.equalsIgnoreCase("MobileControlII")
@@ -89,8 +89,8 @@ public final class MobileControl2 {
         }
 
         try {
-            writeText(ledPath(which, "trigger"), "none");
-            writeText(ledPath(which, "brightness"), on ? "1" : "0");
+            writeText(Leds.path(which, Leds.FILE_TRIGGER), "none");
+            writeText(Leds.path(which, Leds.FILE_BRIGHTNESS), on ? "1" : "0");
         } catch (IOException ex) {
             Log.e(TAG, "Set brightness failed", ex);
         }
@@ -112,38 +112,22 @@ public final class MobileControl2 {
         }
 
         try {
-            writeText(ledPath(which, "trigger"), "timer");
+            writeText(Leds.path(which, Leds.FILE_TRIGGER), "timer");
         } catch (IOException ex) {
             Log.e(TAG, "Set brightness failed", ex);
         }
         try {
-            writeText(ledPath(which, "delay_on"), Integer.toString(onMillis));
-            writeText(ledPath(which, "delay_off"), Integer.toString(offMillis));
+            writeText(Leds.path(which, Leds.FILE_DELAY_ON), Integer.toString(onMillis));
+            writeText(Leds.path(which, Leds.FILE_DELAY_OFF), Integer.toString(offMillis));
         } catch (IOException e) {
             Log.i(TAG, "Set delay for blinking LED failed ");
         }
     }
 
-    private static String ledPath(int which, String fileName) {
-        String root;
-
-        switch (which) {
-            case LED_RED:
-                root = ROOT_RED_LED;
-                break;
-            case LED_GREEN:
-                root = ROOT_GREEN_LED;
-                break;
-            default:
-                throw new IllegalArgumentException("\"which\" must be LED_RED or LED_GREEN.");
-        }
-
-        return root + "/" + fileName;
-    }
-
     private static void writeText(String fileName, String text) throws IOException {
         FileOutputStream fs = null;
 
+        Tracing.beginSection(Tracing.SECTION_WRITE_TEXT);
         try {
             fs = new FileOutputStream(fileName);
             fs.write(text.getBytes());
@@ -155,6 +139,7 @@ public final class MobileControl2 {
                 }
             } catch (IOException ignored) {
             }
+            Tracing.endSection();
         }
     }
 }
@@ -10,6 +10,8 @@ package eu.esu.mobilecontrol2.sdk;
 import android.content.Intent;
 import android.os.Message;
 
+import eu.esu.mobilecontrol2.core.StopButtonProtocol;
+
 /**
  * Provides simple access to stop key events.
  * <p>
@@ -36,12 +38,17 @@ public class StopButtonFragment extends MessageServiceFragment {
     /**
      * Callback message  when the stop button is pressed.
      */
-    private static final int MSG_STOP_BUTTON_DOWN = 3;
+    private static final int MSG_STOP_BUTTON_DOWN = StopButtonProtocol.MSG_STOP_BUTTON_DOWN;
 
     /**
      * Callback message when the stop button is released.
      */
-    private static final int MSG_STOP_BUTTON_UP = 4;
+    private static final int MSG_STOP_BUTTON_UP = StopButtonProtocol.MSG_STOP_BUTTON_UP;
+
+    private static final int[] EVENTS = {
+            MSG_STOP_BUTTON_DOWN,
+            MSG_STOP_BUTTON_UP
+    };
 
     private OnStopButtonListener mListener;
 
@@ -63,9 +70,14 @@ public class StopButtonFragment extends MessageServiceFragment {
         mListener = listener;
     }
 
+    @Override
+    protected int[] getSubscribedEvents() {
+        return EVENTS;
+    }
+
     @Override
     protected Intent getServiceIntent() {
-        Intent intent = new Intent("eu.esu.mobilecontrol2.input.STOP_BUTTON_SERVICE");
+        Intent intent = new Intent(StopButtonProtocol.SERVICE_ACTION);
         intent.setPackage(InputServices.SERVICE_PACKAGE);
         return intent;
     }
@@ -73,13 +85,18 @@ public class StopButtonFragment extends MessageServiceFragment {
     @Override
     protected void onMessageReceived(Message message) {
         if (mListener != null) {
-            switch (message.what) {
-                case MSG_STOP_BUTTON_DOWN:
-                    onStopButtonDown();
-                    break;
-                case MSG_STOP_BUTTON_UP:
-                    onStopButtonUp();
-                    break;
+            Tracing.beginSection(Tracing.SECTION_STOP_BUTTON_DISPATCH);
+            try {
+                switch (message.what) {
+                    case MSG_STOP_BUTTON_DOWN:
+                        onStopButtonDown();
+                        break;
+                    case MSG_STOP_BUTTON_UP:
+                        onStopButtonUp();
+                        break;
+                }
+            } finally {
+                Tracing.endSection();
             }
         }
     }
@@ -7,11 +7,19 @@
 
 package eu.esu.mobilecontrol2.sdk;
 
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
 import android.view.KeyEvent;
 
+import eu.esu.mobilecontrol2.core.InputProtocol;
+import eu.esu.mobilecontrol2.core.ThrottleProtocol;
+import eu.esu.mobilecontrol2.core.Trajectory;
+
 /**
  * Provides simple access the throttle.
  * <p>
@@ -57,38 +65,114 @@ public class ThrottleFragment extends MessageServiceFragment {
     /**
      * Message to change the throttle position. Set {@link Message#arg1} to the position. Range: 0 - 255.
      */
-    private static final int MSG_MOVE_TO = 3;
+    private static final int MSG_MOVE_TO = ThrottleProtocol.MSG_MOVE_TO;
 
     /**
      * Message to set the zero position of the throttle. Set {@link Message#arg1} to the position. Range: 0 - 255.
      */
-    private static final int MSG_SET_ZERO_POSITION = 4;
+    private static final int MSG_SET_ZERO_POSITION = ThrottleProtocol.MSG_SET_ZERO_POSITION;
 
     /**
      * Callback message when the position has changed by user input,
      * {@link Message#arg1} contains the new throttle position. Range: 0 - 126
      */
-    private static final int MSG_POSITION_CHANGED = 5;
+    private static final int MSG_POSITION_CHANGED = ThrottleProtocol.MSG_POSITION_CHANGED;
 
     /**
      * Callback message when the button is pressed.
      */
-    private static final int MSG_BUTTON_DOWN = 6;
+    private static final int MSG_BUTTON_DOWN = ThrottleProtocol.MSG_BUTTON_DOWN;
 
     /**
      * Callback message when the button is released.
      */
-    private static final int MSG_BUTTON_UP = 7;
+    private static final int MSG_BUTTON_UP = ThrottleProtocol.MSG_BUTTON_UP;
 
     /**
      * Callback when the phisical slider's position has changed by user input,
      * {@link Message#arg1} contains the new slider position.
      */
-    public static final int MSG_PHYSICAL_SLIDER_POSITION_CHANGED = 8;
+    public static final int MSG_PHYSICAL_SLIDER_POSITION_CHANGED = ThrottleProtocol.MSG_PHYSICAL_SLIDER_POSITION_CHANGED;
+
+    /**
+     * Message to run a trajectory on the service.
+     */
+    private static final int MSG_RUN_TRAJECTORY = ThrottleProtocol.MSG_RUN_TRAJECTORY;
+
+    /**
+     * Message to cancel a trajectory running on the service.
+     */
+    private static final int MSG_CANCEL_TRAJECTORY = ThrottleProtocol.MSG_CANCEL_TRAJECTORY;
+
+    /**
+     * Callback message when a trajectory waypoint has been reached.
+     */
+    private static final int MSG_TRAJECTORY_PROGRESS = ThrottleProtocol.MSG_TRAJECTORY_PROGRESS;
+
+    /**
+     * Callback message when a trajectory has finished.
+     */
+    private static final int MSG_TRAJECTORY_FINISHED = ThrottleProtocol.MSG_TRAJECTORY_FINISHED;
+
+    private static final String PREFERENCES_NAME = "eu.esu.mobilecontrol2.sdk.ThrottleFragment";
+    private static final String KEY_ZERO_POSITION = "zeroPosition";
+    private static final String KEY_LAST_POSITION = "lastPosition";
+    private static final String KEY_PERSIST_STATE = "persistState";
+    private static final String KEY_RESTORE_POSITION = "restorePosition";
+    private static final String KEY_SCALE_ZERO_OFFSET = "scaleZeroOffset";
+    private static final String KEY_SCALE_STEP_COUNT = "scaleStepCount";
+    private static final long DETENT_IDLE_DELAY_MILLIS = 300;
+
+    private static final int[] STATE_EVENTS = {
+            MSG_POSITION_CHANGED,
+            MSG_TRAJECTORY_PROGRESS,
+            MSG_TRAJECTORY_FINISHED
+    };
+
+    private static final int[] ALL_EVENTS = {
+            MSG_POSITION_CHANGED,
+            MSG_BUTTON_DOWN,
+            MSG_BUTTON_UP,
+            MSG_PHYSICAL_SLIDER_POSITION_CHANGED,
+            MSG_TRAJECTORY_PROGRESS,
+            MSG_TRAJECTORY_FINISHED
+    };
 
     private int mZeroPosition;
     private int mLastPosition;
+    private boolean mPersistState;
+    private boolean mPositionKnown;
+    private boolean mRestorePosition;
+    private ThrottleScale mThrottleScale;
+    private boolean mDetentEnabled;
+    private boolean mButtonPressed;
     private OnThrottleListener mOnThrottleListener;
+    private Trajectory mTrajectory;
+    private int mTrajectoryId;
+    private OnTrajectoryListener mOnTrajectoryListener;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mSnapToDetent = new Runnable() {
+        @Override
+        public void run() {
+            snapToDetent();
+        }
+    };
+
+    // Emulates trajectories with single move messages if the service cannot run them.
+    private final TrajectoryPlayer mTrajectoryPlayer = new TrajectoryPlayer(mHandler,
+            new TrajectoryPlayer.Callback() {
+                @Override
+                public void onWaypoint(int index, int position) {
+                    moveThrottle(position);
+                    onTrajectoryProgress(index);
+                }
+
+                @Override
+                public void onFinished(boolean cancelled) {
+                    onTrajectoryFinished(cancelled);
+                }
+            });
 
     /**
      * Creates a new instance of the {@link eu.esu.mobilecontrol2.sdk.ThrottleFragment} class.
@@ -101,8 +185,27 @@ public class ThrottleFragment extends MessageServiceFragment {
      * @return A new throttle fragment instance.
      */
     public static ThrottleFragment newInstance(int zeroPosition) {
+        return newInstance(zeroPosition, false);
+    }
+
+    /**
+     * Creates a new instance of the {@link eu.esu.mobilecontrol2.sdk.ThrottleFragment} class.
+     * <p>
+     * If {@code persistState} is {@code true} the last position and the throttle scale are
+     * additionally written to a small snapshot in the shared preferences when the fragment is paused. The snapshot is
+     * used to restore the state if the fragment is created without a saved instance state, e.g. after the app has
+     * been closed. Use a unique fragment tag per throttle, the snapshot is stored per tag. The {@code zeroPosition}
+     * is not part of the snapshot, the argument always applies. Invalid snapshots are discarded.
+     * </p>
+     *
+     * @param zeroPosition The zeroPosition.
+     * @param persistState {@code true} to keep a snapshot of the throttle state on disk.
+     * @return A new throttle fragment instance.
+     */
+    public static ThrottleFragment newInstance(int zeroPosition, boolean persistState) {
         Bundle args = new Bundle();
-        args.putInt("zeroPosition", checkPosition(zeroPosition));
+        args.putInt(KEY_ZERO_POSITION, checkPosition(zeroPosition));
+        args.putBoolean(KEY_PERSIST_STATE, persistState);
 
         ThrottleFragment fragment = new ThrottleFragment();
         fragment.setArguments(args);
@@ -110,17 +213,54 @@ public class ThrottleFragment extends MessageServiceFragment {
     }
 
     private static int checkPosition(int position) {
-        if (position < 0 || position > 255) {
-            throw new IllegalArgumentException("position must be >= 0 and <= 255");
-        }
-
-        return position;
+        return ThrottleProtocol.checkPosition(position);
     }
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        mZeroPosition = getArguments().getInt("zeroPosition");
+        mZeroPosition = getArguments().getInt(KEY_ZERO_POSITION);
+        mPersistState = getArguments().getBoolean(KEY_PERSIST_STATE);
+
+        if (savedInstanceState != null) {
+            restoreState(savedInstanceState);
+        } else if (mPersistState) {
+            restoreSnapshot();
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(KEY_ZERO_POSITION, mZeroPosition);
+        if (mPositionKnown) {
+            outState.putInt(KEY_LAST_POSITION, mLastPosition);
+        }
+        outState.putBoolean(KEY_RESTORE_POSITION, mRestorePosition);
+        if (mThrottleScale != null) {
+            outState.putInt(KEY_SCALE_ZERO_OFFSET, mThrottleScale.getZeroOffset());
+            outState.putInt(KEY_SCALE_STEP_COUNT, mThrottleScale.getStepCount());
+        }
+    }
+
+    @Override
+    public void onPause() {
+        if (!isReceiveWhilePaused()) {
+            cancelTrajectory();
+        }
+        super.onPause();
+        mHandler.removeCallbacks(mSnapToDetent);
+        if (mPersistState) {
+            saveSnapshot();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        // Stop the motor and drop pending waypoints and detent snaps, they must not outlive the fragment.
+        cancelTrajectory();
+        mHandler.removeCallbacksAndMessages(null);
+        super.onDestroy();
     }
 
     /**
@@ -143,9 +283,138 @@ public class ThrottleFragment extends MessageServiceFragment {
             final Message msg = Message.obtain(null, MSG_MOVE_TO, checkPosition(position), 0);
             sendMessage(msg);
             mLastPosition = position;
+            mPositionKnown = true;
+            Tracing.setCounter(Tracing.COUNTER_THROTTLE_POSITION, position);
+        }
+    }
+
+    /**
+     * Sets if the throttle is moved back to the last known position.
+     * <p>
+     * If enabled, the throttle is moved to the last known position after the service has been connected or the
+     * fragment has been resumed, overriding any lever movement the user made in the meantime. By default the
+     * fragment keeps the hardware position and, if supported by the service, receives the current position once via
+     * {@link OnThrottleListener#onPositionChanged(int)}.
+     * </p>
+     *
+     * @param restorePosition {@code true} to move the throttle back to the last known position.
+     */
+    public void setRestorePosition(boolean restorePosition) {
+        mRestorePosition = restorePosition;
+    }
+
+    /**
+     * Returns if the throttle is moved back to the last known position.
+     *
+     * @return {@code true} if the last known position is restored, else {@code false}.
+     */
+    public boolean isRestorePosition() {
+        return mRestorePosition;
+    }
+
+    /**
+     * Moves the throttle along a trajectory.
+     * <p>
+     * If supported by the service, the whole trajectory is sent in a single message and executed by the service.
+     * Otherwise the fragment sends the waypoints one by one. A running trajectory is cancelled. Trajectories are
+     * cancelled if the fragment is paused, unless {@link #setReceiveWhilePaused(boolean)} is enabled. For the same
+     * reason a trajectory started while paused is not run, the listener is notified immediately that it has been
+     * cancelled.
+     * </p>
+     *
+     * @param trajectory The trajectory.
+     * @param listener   The listener to receive progress callbacks or {@code null}.
+     */
+    public void runTrajectory(Trajectory trajectory, OnTrajectoryListener listener) {
+        cancelTrajectory();
+
+        if (!isResumed() && !isReceiveWhilePaused()) {
+            if (listener != null) {
+                listener.onTrajectoryFinished(true);
+            }
+            return;
+        }
+
+        mTrajectory = trajectory;
+        mOnTrajectoryListener = listener;
+        ++mTrajectoryId;
+
+        if (isServiceBound() && hasCapability(InputProtocol.CAPABILITY_TRAJECTORY)) {
+            final Message msg = Message.obtain(null, MSG_RUN_TRAJECTORY, mTrajectoryId, 0);
+            msg.setData(InputServices.toBundle(trajectory));
+            sendMessage(msg);
+        } else {
+            mTrajectoryPlayer.start(trajectory);
         }
     }
 
+    /**
+     * Cancels the running trajectory. The throttle stops at its current position.
+     */
+    public void cancelTrajectory() {
+        if (mTrajectory == null) {
+            return;
+        }
+
+        if (mTrajectoryPlayer.isRunning()) {
+            mTrajectoryPlayer.cancel();
+        } else {
+            if (isServiceBound()) {
+                sendMessage(Message.obtain(null, MSG_CANCEL_TRAJECTORY, mTrajectoryId, 0));
+            }
+            onTrajectoryFinished(true);
+        }
+    }
+
+    /**
+     * Attaches a throttle scale to the fragment.
+     * <p>
+     * The scale is saved and restored together with the throttle state.
+     * </p>
+     *
+     * @param scale The scale or {@code null}.
+     */
+    public void setThrottleScale(ThrottleScale scale) {
+        mThrottleScale = scale;
+    }
+
+    /**
+     * Returns the attached throttle scale.
+     *
+     * @return The scale or {@code null} if no scale is attached.
+     */
+    public ThrottleScale getThrottleScale() {
+        return mThrottleScale;
+    }
+
+    /**
+     * Enables or disables the detent mode.
+     * <p>
+     * If enabled, the throttle moves to the detent position of the current step after the button has been released
+     * or the throttle has not been moved for a short time. The detent mode requires a
+     * {@link #setThrottleScale(ThrottleScale) throttle scale}, it does nothing if no scale is attached.
+     * </p>
+     *
+     * @param enabled {@code true} to enable the detent mode, else {@code false}.
+     * @see ThrottleScale#stepToDetentPosition(int)
+     */
+    public void setDetentEnabled(boolean enabled) {
+        mDetentEnabled = enabled;
+        if (!enabled) {
+            mHandler.removeCallbacks(mSnapToDetent);
+        }
+        updateSubscription();
+    }
+
+    /**
+     * Returns if the detent mode is enabled.
+     *
+     * @return {@code true} if the detent mode is enabled, else {@code false}.
+     */
+    public boolean isDetentEnabled() {
+        return mDetentEnabled;
+    }
+
     /**
      * Sets the listener to receive callbacks from the fragment.
      *
@@ -153,6 +422,7 @@ public class ThrottleFragment extends MessageServiceFragment {
      */
     public void setOnThrottleListener(OnThrottleListener listener) {
         mOnThrottleListener = listener;
+        updateSubscription();
     }
 
     /**
@@ -179,11 +449,44 @@ public class ThrottleFragment extends MessageServiceFragment {
     @Override
     protected void onServiceConnected() {
         setZeroPosition(mZeroPosition);
+        restorePosition();
+    }
+
+    @Override
+    protected int[] getSubscribedEvents() {
+        // Button and slider events are only needed for the listener and the detent mode.
+        return mOnThrottleListener != null || mDetentEnabled ? ALL_EVENTS : STATE_EVENTS;
+    }
+
+    @Override
+    protected void onResubscribe() {
+        setZeroPosition(mZeroPosition);
+        restorePosition();
     }
 
     @Override
     protected void onMessageReceived(Message message) {
-        if (mOnThrottleListener != null) {
+        switch (message.what) {
+            case MSG_TRAJECTORY_PROGRESS:
+                // The waypoint index comes from another process, ignore invalid values.
+                if (mTrajectory != null && message.arg1 == mTrajectoryId
+                        && message.arg2 >= 0 && message.arg2 < mTrajectory.getWaypointCount()) {
+                    mLastPosition = mTrajectory.getPosition(message.arg2);
+                    mPositionKnown = true;
+                    onTrajectoryProgress(message.arg2);
+                }
+                return;
+            case MSG_TRAJECTORY_FINISHED:
+                if (mTrajectory != null && message.arg1 == mTrajectoryId) {
+                    onTrajectoryFinished(message.arg2 != 0);
+                }
+                return;
+            default:
+                break;
+        }
+
+        Tracing.beginSection(Tracing.SECTION_THROTTLE_DISPATCH);
+        try {
             switch (message.what) {
                 case MSG_BUTTON_DOWN:
                     onButtonDown();
@@ -200,33 +503,190 @@ public class ThrottleFragment extends MessageServiceFragment {
                 default:
                     break;
             }
+        } finally {
+            Tracing.endSection();
         }
     }
 
+    @Override
+    protected boolean shouldBindService() {
+        return LocalThrottleService.isEnabled() || super.shouldBindService();
+    }
+
     @Override
     protected Intent getServiceIntent() {
-        Intent intent = new Intent("eu.esu.mobilecontrol2.input.THROTTLE_SERVICE");
+        if (LocalThrottleService.isEnabled()) {
+            return new Intent(getActivity(), LocalThrottleService.class);
+        }
+
+        Intent intent = new Intent(ThrottleProtocol.SERVICE_ACTION);
         intent.setPackage(InputServices.SERVICE_PACKAGE);
         return intent;
     }
 
+    private void restoreState(Bundle state) {
+        mZeroPosition = state.getInt(KEY_ZERO_POSITION, mZeroPosition);
+        mRestorePosition = state.getBoolean(KEY_RESTORE_POSITION, mRestorePosition);
+        if (state.containsKey(KEY_LAST_POSITION)) {
+            mLastPosition = state.getInt(KEY_LAST_POSITION);
+            mPositionKnown = true;
+        }
+
+        if (mThrottleScale == null && state.containsKey(KEY_SCALE_STEP_COUNT)) {
+            mThrottleScale = createScale(
+                    state.getInt(KEY_SCALE_ZERO_OFFSET),
+                    state.getInt(KEY_SCALE_STEP_COUNT));
+        }
+    }
+
+    private void restoreSnapshot() {
+        final SharedPreferences preferences = getSnapshotPreferences();
+        final String prefix = getSnapshotPrefix();
+        if (!preferences.contains(prefix + KEY_LAST_POSITION)) {
+            return;
+        }
+
+        // The zero position passed to newInstance() is kept, only the saved instance state overrides it.
+        final int lastPosition = preferences.getInt(prefix + KEY_LAST_POSITION, -1);
+        ThrottleScale scale = null;
+        if (preferences.contains(prefix + KEY_SCALE_STEP_COUNT)) {
+            scale = createScale(
+                    preferences.getInt(prefix + KEY_SCALE_ZERO_OFFSET, -1),
+                    preferences.getInt(prefix + KEY_SCALE_STEP_COUNT, -1));
+            if (scale == null) {
+                clearSnapshot();
+                return;
+            }
+        }
+
+        if (lastPosition < ThrottleProtocol.MIN_POSITION || lastPosition > ThrottleProtocol.MAX_POSITION) {
+            clearSnapshot();
+            return;
+        }
+
+        mLastPosition = lastPosition;
+        mPositionKnown = true;
+        if (mThrottleScale == null) {
+            mThrottleScale = scale;
+        }
+    }
+
+    private void clearSnapshot() {
+        final String prefix = getSnapshotPrefix();
+        getSnapshotPreferences().edit()
+                .remove(prefix + KEY_LAST_POSITION)
+                .remove(prefix + KEY_SCALE_ZERO_OFFSET)
+                .remove(prefix + KEY_SCALE_STEP_COUNT)
+                .apply();
+    }
+
+    private static ThrottleScale createScale(int zeroOffset, int stepCount) {
+        if (zeroOffset < ThrottleProtocol.MIN_POSITION || zeroOffset > ThrottleProtocol.MAX_POSITION
+                || stepCount < 1 || stepCount > ThrottleProtocol.MAX_POSITION - zeroOffset) {
+            return null;
+        }
+
+        return new ThrottleScale(zeroOffset, stepCount);
+    }
+
+    private void saveSnapshot() {
+        // Never persist the placeholder position, it would be restored as a real one.
+        if (!mPositionKnown) {
+            clearSnapshot();
+            return;
+        }
+
+        final String prefix = getSnapshotPrefix();
+        final SharedPreferences.Editor editor = getSnapshotPreferences().edit()
+                .putInt(prefix + KEY_LAST_POSITION, mLastPosition);
+
+        if (mThrottleScale != null) {
+            editor.putInt(prefix + KEY_SCALE_ZERO_OFFSET, mThrottleScale.getZeroOffset())
+                    .putInt(prefix + KEY_SCALE_STEP_COUNT, mThrottleScale.getStepCount());
+        } else {
+            editor.remove(prefix + KEY_SCALE_ZERO_OFFSET)
+                    .remove(prefix + KEY_SCALE_STEP_COUNT);
+        }
+        editor.apply();
+    }
+
+    private SharedPreferences getSnapshotPreferences() {
+        return getActivity().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private String getSnapshotPrefix() {
+        final String tag = getTag();
+        return (tag != null ? tag : "") + ":";
+    }
+
     private void onButtonDown() {
+        mButtonPressed = true;
+        mHandler.removeCallbacks(mSnapToDetent);
+
         if (mOnThrottleListener != null) {
             mOnThrottleListener.onButtonDown();
         }
     }
 
     private void onButtonUp() {
+        mButtonPressed = false;
+
         if (mOnThrottleListener != null) {
             mOnThrottleListener.onButtonUp();
         }
+        snapToDetent();
+    }
+
+    private void restorePosition() {
+        if (mRestorePosition && mPositionKnown) {
+            moveThrottle(mLastPosition);
+        }
     }
 
     private void onPositionChanged(int position) {
+        mLastPosition = position;
+        mPositionKnown = true;
+        Tracing.setCounter(Tracing.COUNTER_THROTTLE_POSITION, position);
+
         if (mOnThrottleListener != null) {
-            mLastPosition = position;
             mOnThrottleListener.onPositionChanged(position);
         }
+
+        if (mDetentEnabled && !mButtonPressed && mTrajectory == null) {
+            mHandler.removeCallbacks(mSnapToDetent);
+            mHandler.postDelayed(mSnapToDetent, DETENT_IDLE_DELAY_MILLIS);
+        }
+    }
+
+    private void snapToDetent() {
+        mHandler.removeCallbacks(mSnapToDetent);
+        // Without a known position the snap would drive the throttle to an arbitrary step. A running trajectory
+        // owns the throttle, snapping would cancel it.
+        if (!mDetentEnabled || mThrottleScale == null || !mPositionKnown || mTrajectory != null) {
+            return;
+        }
+
+        final int step = mThrottleScale.positionToStep(mLastPosition);
+        final int position = Math.max(mThrottleScale.stepToDetentPosition(step), mZeroPosition);
+        if (position != mLastPosition) {
+            moveThrottle(position);
+        }
+    }
+
+    private void onTrajectoryProgress(int waypoint) {
+        if (mOnTrajectoryListener != null) {
+            mOnTrajectoryListener.onTrajectoryProgress(waypoint);
+        }
+    }
+
+    private void onTrajectoryFinished(boolean cancelled) {
+        final OnTrajectoryListener listener = mOnTrajectoryListener;
+        mTrajectory = null;
+        mOnTrajectoryListener = null;
+
+        if (listener != null) {
+            listener.onTrajectoryFinished(cancelled);
+        }
     }
 
     private void onPhysicalSliderPositionChanged(int pos) {
@@ -264,4 +724,24 @@ public class ThrottleFragment extends MessageServiceFragment {
          */
         void onPhysicalSliderPositionChanged(int position);
     }
+
+    /**
+     * Listener interface for trajectory callbacks.
+     */
+    public interface OnTrajectoryListener {
+
+        /**
+         * Invoked after a waypoint of the trajectory has been reached.
+         *
+         * @param waypoint The waypoint index.
+         */
+        void onTrajectoryProgress(int waypoint);
+
+        /**
+         * Invoked after the trajectory has finished.
+         *
+         * @param cancelled {@code true} if the trajectory has been cancelled, else {@code false}.
+         */
+        void onTrajectoryFinished(boolean cancelled);
+    }
 }
\ No newline at end of file
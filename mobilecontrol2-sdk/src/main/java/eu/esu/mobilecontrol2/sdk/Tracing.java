@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+package eu.esu.mobilecontrol2.sdk;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Utility class to add SDK sections and counters to systrace and Perfetto traces.
+ * <p>
+ * Sections require api level 18, counters require api level 29. On older devices all methods do nothing. If tracing
+ * is not active, the calls return after a cheap check.
+ * </p>
+ */
+final class Tracing {
+    static final String SECTION_SEND_MESSAGE = "MC2:sendMessage";
+    static final String SECTION_HANDLE_MESSAGE = "MC2:handleMessage";
+    static final String SECTION_THROTTLE_DISPATCH = "MC2:ThrottleFragment.dispatch";
+    static final String SECTION_STOP_BUTTON_DISPATCH = "MC2:StopButtonFragment.dispatch";
+    static final String SECTION_WRITE_TEXT = "MC2:writeText";
+
+    static final String COUNTER_THROTTLE_POSITION = "MC2:throttlePosition";
+    static final String COUNTER_TRAJECTORY_REMAINING = "MC2:trajectoryRemaining";
+
+    private Tracing() {
+    }
+
+    /**
+     * Begins a trace section on the current thread.
+     *
+     * @param name The section name.
+     */
+    static void beginSection(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+    }
+
+    /**
+     * Ends the last trace section started on the current thread.
+     */
+    static void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Updates a counter track.
+     *
+     * @param name  The counter name.
+     * @param value The new value.
+     */
+    static void setCounter(String name, long value) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && Trace.isEnabled()) {
+            Trace.setCounter(name, value);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015 ESU electronic solutions ulm GmbH & Co KG
+ *
+ * This software may be modified and distributed under the terms
+ * of the MIT license. See the LICENSE file for details.
+ */
+
+package eu.esu.mobilecontrol2.sdk;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import eu.esu.mobilecontrol2.core.Trajectory;
+
+/**
+ * Plays a {@link Trajectory} by scheduling its waypoints on a handler.
+ */
+final class TrajectoryPlayer implements Runnable {
+    private final Handler mHandler;
+    private final Callback mCallback;
+    private Trajectory mTrajectory;
+    private int mIndex;
+    private long mStartTime;
+
+    /**
+     * Creates a new {@link TrajectoryPlayer} instance.
+     *
+     * @param handler  The handler used to schedule the waypoints.
+     * @param callback The callback.
+     */
+    TrajectoryPlayer(Handler handler, Callback callback) {
+        mHandler = handler;
+        mCallback = callback;
+    }
+
+    /**
+     * Starts a trajectory. A running trajectory is cancelled.
+     *
+     * @param trajectory The trajectory.
+     */
+    void start(Trajectory trajectory) {
+        cancel();
+
+        mTrajectory = trajectory;
+        mIndex = 0;
+        mStartTime = SystemClock.uptimeMillis();
+        mHandler.postAtTime(this, mStartTime + trajectory.getTime(0));
+    }
+
+    /**
+     * Cancels the running trajectory.
+     */
+    void cancel() {
+        if (mTrajectory != null) {
+            mHandler.removeCallbacks(this);
+            mTrajectory = null;
+            Tracing.setCounter(Tracing.COUNTER_TRAJECTORY_REMAINING, 0);
+            mCallback.onFinished(true);
+        }
+    }
+
+    /**
+     * Returns if a trajectory is running.
+     *
+     * @return {@code true} if a trajectory is running, else {@code false}.
+     */
+    boolean isRunning() {
+        return mTrajectory != null;
+    }
+
+    @Override
+    public void run() {
+        final Trajectory trajectory = mTrajectory;
+        if (trajectory == null) {
+            return;
+        }
+
+        final int index = mIndex++;
+        final int remaining = trajectory.getWaypointCount() - mIndex;
+        Tracing.setCounter(Tracing.COUNTER_TRAJECTORY_REMAINING, remaining);
+        mCallback.onWaypoint(index, trajectory.getPosition(index));
+
+        // The callback may have started or cancelled a trajectory.
+        if (mTrajectory != trajectory) {
+            return;
+        }
+
+        if (remaining > 0) {
+            mHandler.postAtTime(this, mStartTime + trajectory.getTime(mIndex));
+        } else {
+            mTrajectory = null;
+            mCallback.onFinished(false);
+        }
+    }
+
+    /**
+     * Callback interface for the trajectory player.
+     */
+    interface Callback {
+        /**
+         * Invoked when a waypoint is reached.
+         *
+         * @param index    The waypoint index.
+         * @param position The waypoint position.
+         */
+        void onWaypoint(int index, int position);
+
+        /**
+         * Invoked after the trajectory has finished.
+         *
+         * @param cancelled {@code true} if the trajectory has been cancelled.
+         */
+        void onFinished(boolean cancelled);
+    }
+}